@@ -3,6 +3,8 @@ package com.raineri.security.jwt.auth;
 import com.raineri.security.jwt.service.AuthService;
 import com.raineri.security.jwt.dto.LoginRequest;
 import com.raineri.security.jwt.dto.RegisterRequest;
+import com.raineri.security.jwt.jwt.JwtAuthenticationFilter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * AuthController handles authentication-related requests such as login and registration.
@@ -20,6 +23,7 @@ import org.springframework.web.bind.annotation.RestController;
  * Endpoints:
  * - POST /auth/login: Authenticates a user with the provided credentials.
  * - POST /auth/register: Registers a new user with the provided details.
+ * - POST /auth/logout: Revokes the opaque token in the Authorization header.
  * 
  * Dependencies:
  * - AuthService: Service layer for handling authentication logic.
@@ -27,9 +31,14 @@ import org.springframework.web.bind.annotation.RestController;
  * Methods:
  * - login(LoginRequest request): Authenticates a user and returns a response with authentication details.
  * - register(RegisterRequest request): Registers a new user and returns a response with registration details.
+ * - logout(HttpServletRequest request): Revokes the bearer token and returns an empty response.
  * 
  * Exception Handling:
- * - Catches any exceptions during the execution of login and register methods and returns an internal server error response with the exception message.
+ * - A ResponseStatusException thrown by AuthService is returned with its status and reason, e.g. a bad request
+ *   response for logout when the application is not in opaque token mode, or for a username that is too long
+ *   for an opaque token session.
+ * - logout returns a bad request response when the request has no bearer token.
+ * - Catches any other exceptions during the execution of login, register and logout methods and returns an internal server error response with the exception message.
  */
 
 @RestController
@@ -43,6 +52,10 @@ public class AuthController {
     public ResponseEntity<?> login(@RequestBody LoginRequest request) {
         try {
             return ResponseEntity.ok(authService.login(request));
+        } catch (ResponseStatusException e) {
+            return new ResponseEntity<>(
+                    Map.of("message", e.getReason()),
+                    e.getStatusCode());
         } catch (Exception e) {
             return new ResponseEntity<>(
                     Map.of("message", e.getMessage()),
@@ -54,6 +67,36 @@ public class AuthController {
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
         try {
             return ResponseEntity.ok(authService.register(request));
+        } catch (ResponseStatusException e) {
+            return new ResponseEntity<>(
+                    Map.of("message", e.getReason()),
+                    e.getStatusCode()
+            );
+        } catch (Exception e) {
+            return new ResponseEntity<>(
+                    Map.of("message", e.getMessage()),
+                    HttpStatus.INTERNAL_SERVER_ERROR
+            );
+        }
+    }
+
+    @PostMapping("logout")
+    public ResponseEntity<?> logout(HttpServletRequest request) {
+        String token = JwtAuthenticationFilter.getTokenFromRequest(request);
+        if (token == null) {
+            return new ResponseEntity<>(
+                    Map.of("message", "Missing bearer token"),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+        try {
+            authService.logout(token);
+            return ResponseEntity.noContent().build();
+        } catch (ResponseStatusException e) {
+            return new ResponseEntity<>(
+                    Map.of("message", e.getReason()),
+                    e.getStatusCode()
+            );
         } catch (Exception e) {
             return new ResponseEntity<>(
                     Map.of("message", e.getMessage()),
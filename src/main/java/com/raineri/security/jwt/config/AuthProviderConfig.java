@@ -1,16 +1,21 @@
 package com.raineri.security.jwt.config;
 
+import com.raineri.security.jwt.jfr.RecordingPasswordEncoder;
+import com.raineri.security.jwt.jfr.UserLookupEvent;
+import com.raineri.security.jwt.password.AdaptivePasswordEncoder;
+import com.raineri.security.jwt.password.PasswordHashCalibrator;
 import com.raineri.security.jwt.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 /**
@@ -23,7 +28,11 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  * - AuthenticationManager: Retrieves the AuthenticationManager from the provided AuthenticationConfiguration.
  * - AuthenticationProvider: Configures a DaoAuthenticationProvider with a custom UserDetailsService and PasswordEncoder.
  * - UserDetailsService: Loads user-specific data during authentication by finding a user by username.
- * - PasswordEncoder: Encodes passwords using BCrypt hashing algorithm.
+ *   Each lookup is recorded as a UserLookupEvent for JDK Flight Recorder.
+ * - PasswordEncoder: Encodes passwords as "{bcrypt}" prefixed BCrypt hashes. The BCrypt strength is
+ *   "auth.password.strength" if set, otherwise it is calibrated at startup to "auth.password.target-latency",
+ *   within "auth.password.min-strength" and "auth.password.max-strength".
+ *   Encode and matches calls are recorded as PasswordEncoderEvent for JDK Flight Recorder.
  * 
  * Dependencies:
  * 
@@ -35,6 +44,30 @@ public class AuthProviderConfig {
 
     private final UserRepository userRepository;
 
+    /**
+     * A fixed BCrypt strength, or 0 to calibrate it at startup.
+     */
+    @Value("${auth.password.strength:0}")
+    private int passwordStrength;
+
+    /**
+     * The target time of a single password hash in milliseconds, used for calibration.
+     */
+    @Value("${auth.password.target-latency:250}")
+    private long passwordTargetLatencyMillis;
+
+    /**
+     * The lowest BCrypt strength calibration may choose.
+     */
+    @Value("${auth.password.min-strength:10}")
+    private int passwordMinStrength;
+
+    /**
+     * The highest BCrypt strength calibration may choose.
+     */
+    @Value("${auth.password.max-strength:14}")
+    private int passwordMaxStrength;
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
@@ -50,12 +83,40 @@ public class AuthProviderConfig {
 
     @Bean
     public UserDetailsService userDetailsService() {
-        return username -> userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return username -> {
+            UserLookupEvent event = new UserLookupEvent();
+            event.begin();
+            String outcome = UserLookupEvent.OUTCOME_ERROR;
+            try {
+                UserDetails user = userRepository.findByUsername(username)
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+                outcome = UserLookupEvent.OUTCOME_OK;
+                return user;
+            } catch (UsernameNotFoundException e) {
+                outcome = UserLookupEvent.OUTCOME_NOT_FOUND;
+                throw e;
+            } finally {
+                event.finish(outcome);
+            }
+        };
     }
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        if (passwordStrength != 0) {
+            try {
+                return new RecordingPasswordEncoder(new AdaptivePasswordEncoder(passwordStrength));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid auth.password.strength (0 to calibrate): "
+                        + e.getMessage(), e);
+            }
+        }
+        try {
+            return new RecordingPasswordEncoder(PasswordHashCalibrator.calibrate(
+                    passwordTargetLatencyMillis, passwordMinStrength, passwordMaxStrength));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid auth.password.target-latency, auth.password.min-strength"
+                    + " or auth.password.max-strength: " + e.getMessage(), e);
+        }
     }
 }
@@ -0,0 +1,27 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * AuthFilterEvent is a JFR event emitted for every pass through
+ * JwtAuthenticationFilter.doFilterInternal, excluding the downstream filter chain.
+ * @author Exequiel
+ */
+@Name(AuthFilterEvent.NAME)
+@Label("Authentication Filter")
+@Category({"JWT Service", "Authentication"})
+@Description("Time spent authenticating a request in JwtAuthenticationFilter")
+@Threshold("5 ms")
+@StackTrace(false)
+public class AuthFilterEvent extends AuthStageEvent {
+
+    public static final String NAME = "com.raineri.security.jwt.AuthFilter";
+
+    @Label("Request URI")
+    public String requestUri;
+}
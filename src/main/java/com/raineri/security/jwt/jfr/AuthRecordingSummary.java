@@ -0,0 +1,111 @@
+package com.raineri.security.jwt.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * AuthRecordingSummary is a command line tool that reads a JFR recording and prints
+ * a per-stage latency breakdown of the authentication events.
+ *
+ * Usage:
+ * java -cp target/classes com.raineri.security.jwt.jfr.AuthRecordingSummary recording.jfr
+ * @author Exequiel
+ */
+public class AuthRecordingSummary {
+
+    private static final String EVENT_PREFIX = "com.raineri.security.jwt.";
+
+    /**
+     * The latency statistics of one stage, in nanoseconds.
+     */
+    public record StageSummary(int count, long mean, long p50, long p95, long p99, long max) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: AuthRecordingSummary <recording.jfr>");
+            System.exit(1);
+        }
+
+        Map<String, StageSummary> summaries = summarize(Path.of(args[0]));
+        if (summaries.isEmpty()) {
+            System.out.println("No authentication events found in " + args[0]);
+            return;
+        }
+
+        System.out.printf("%-45s %8s %10s %10s %10s %10s %10s%n",
+                "Stage", "Count", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+        summaries.forEach((stage, summary) -> System.out.printf(
+                "%-45s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                stage,
+                summary.count(),
+                toMillis(summary.mean()),
+                toMillis(summary.p50()),
+                toMillis(summary.p95()),
+                toMillis(summary.p99()),
+                toMillis(summary.max())));
+    }
+
+    /**
+     * Groups the authentication events of a recording by stage and computes their latency statistics.
+     * A stage is the event name without the common prefix, followed by the operation if the event
+     * has one and the outcome, e.g. "PasswordEncoder.matches [OK]".
+     *
+     * @param recordingFile the JFR recording
+     * @return the statistics of each stage, sorted by stage
+     * @throws IOException if the recording cannot be read
+     */
+    public static Map<String, StageSummary> summarize(Path recordingFile) throws IOException {
+        Map<String, List<Long>> durationsByStage = new TreeMap<>();
+        try (RecordingFile recording = new RecordingFile(recordingFile)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                if (!name.startsWith(EVENT_PREFIX)) {
+                    continue;
+                }
+                String stage = name.substring(EVENT_PREFIX.length());
+                if (event.hasField("operation")) {
+                    stage += "." + event.getString("operation");
+                }
+                stage += " [" + event.getString("outcome") + "]";
+                durationsByStage.computeIfAbsent(stage, key -> new ArrayList<>())
+                        .add(event.getDuration().toNanos());
+            }
+        }
+
+        Map<String, StageSummary> summaries = new LinkedHashMap<>();
+        durationsByStage.forEach((stage, durations) -> {
+            durations.sort(null);
+            long total = 0;
+            for (long duration : durations) {
+                total += duration;
+            }
+            summaries.put(stage, new StageSummary(
+                    durations.size(),
+                    total / durations.size(),
+                    percentile(durations, 50),
+                    percentile(durations, 95),
+                    percentile(durations, 99),
+                    durations.get(durations.size() - 1)));
+        });
+        return summaries;
+    }
+
+    static long percentile(List<Long> sortedDurations, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedDurations.size()) - 1;
+        return sortedDurations.get(Math.max(index, 0));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) Duration.ofMillis(1).toNanos();
+    }
+}
@@ -0,0 +1,38 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * AuthStageEvent is the base class for the JFR events emitted along the authentication path.
+ * Every stage records its duration (inherited from Event) and one of the OUTCOME_ constants.
+ * Call sites start from OUTCOME_ERROR and set the outcome once the stage has completed,
+ * so an exception is always recorded as OUTCOME_ERROR.
+ * @author Exequiel
+ */
+public abstract class AuthStageEvent extends Event {
+
+    public static final String OUTCOME_OK = "OK";
+    public static final String OUTCOME_ERROR = "ERROR";
+    public static final String OUTCOME_NOT_FOUND = "NOT_FOUND";
+    public static final String OUTCOME_MISMATCH = "MISMATCH";
+    public static final String OUTCOME_NO_TOKEN = "NO_TOKEN";
+    public static final String OUTCOME_SKIPPED = "SKIPPED";
+    public static final String OUTCOME_INVALID_TOKEN = "INVALID_TOKEN";
+
+    @Label("Outcome")
+    public String outcome;
+
+    /**
+     * Ends the event and commits it with the given outcome if it passes the configured threshold.
+     *
+     * @param outcome the outcome of the stage
+     */
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JwtIssueEvent is a JFR event emitted when JwtService builds and signs a new token.
+ * @author Exequiel
+ */
+@Name(JwtIssueEvent.NAME)
+@Label("JWT Issue")
+@Category({"JWT Service", "Authentication"})
+@Description("Time spent building and signing a JWT")
+@Threshold("1 ms")
+@StackTrace(false)
+public class JwtIssueEvent extends AuthStageEvent {
+
+    public static final String NAME = "com.raineri.security.jwt.JwtIssue";
+}
@@ -0,0 +1,23 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JwtParseEvent is a JFR event emitted when JwtService parses and verifies a token.
+ * @author Exequiel
+ */
+@Name(JwtParseEvent.NAME)
+@Label("JWT Parse")
+@Category({"JWT Service", "Authentication"})
+@Description("Time spent parsing and verifying the signature of a JWT")
+@Threshold("1 ms")
+@StackTrace(false)
+public class JwtParseEvent extends AuthStageEvent {
+
+    public static final String NAME = "com.raineri.security.jwt.JwtParse";
+}
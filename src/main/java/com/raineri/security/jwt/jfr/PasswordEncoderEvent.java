@@ -0,0 +1,29 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * PasswordEncoderEvent is a JFR event emitted around PasswordEncoder calls, see RecordingPasswordEncoder.
+ * @author Exequiel
+ */
+@Name(PasswordEncoderEvent.NAME)
+@Label("Password Encoder")
+@Category({"JWT Service", "Authentication"})
+@Description("Time spent hashing or matching a password")
+@Threshold("20 ms")
+@StackTrace(false)
+public class PasswordEncoderEvent extends AuthStageEvent {
+
+    public static final String NAME = "com.raineri.security.jwt.PasswordEncoder";
+
+    public static final String ENCODE = "encode";
+    public static final String MATCHES = "matches";
+
+    @Label("Operation")
+    public String operation;
+}
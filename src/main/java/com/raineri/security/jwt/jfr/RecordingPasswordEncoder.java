@@ -0,0 +1,52 @@
+package com.raineri.security.jwt.jfr;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * RecordingPasswordEncoder wraps a PasswordEncoder and records its encode and matches calls
+ * as PasswordEncoderEvent, including the matches done by DaoAuthenticationProvider on login.
+ * @author Exequiel
+ */
+public class RecordingPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+
+    public RecordingPasswordEncoder(PasswordEncoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        PasswordEncoderEvent event = new PasswordEncoderEvent();
+        event.operation = PasswordEncoderEvent.ENCODE;
+        event.begin();
+        String outcome = PasswordEncoderEvent.OUTCOME_ERROR;
+        try {
+            String encoded = delegate.encode(rawPassword);
+            outcome = PasswordEncoderEvent.OUTCOME_OK;
+            return encoded;
+        } finally {
+            event.finish(outcome);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        PasswordEncoderEvent event = new PasswordEncoderEvent();
+        event.operation = PasswordEncoderEvent.MATCHES;
+        event.begin();
+        String outcome = PasswordEncoderEvent.OUTCOME_ERROR;
+        try {
+            boolean matches = delegate.matches(rawPassword, encodedPassword);
+            outcome = matches ? PasswordEncoderEvent.OUTCOME_OK : PasswordEncoderEvent.OUTCOME_MISMATCH;
+            return matches;
+        } finally {
+            event.finish(outcome);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
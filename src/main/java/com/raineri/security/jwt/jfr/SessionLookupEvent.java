@@ -0,0 +1,23 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * SessionLookupEvent is a JFR event emitted when OpaqueTokenService resolves a token.
+ * @author Exequiel
+ */
+@Name(SessionLookupEvent.NAME)
+@Label("Session Lookup")
+@Category({"JWT Service", "Authentication"})
+@Description("Time spent resolving an opaque token in the session store")
+@Threshold("1 ms")
+@StackTrace(false)
+public class SessionLookupEvent extends AuthStageEvent {
+
+    public static final String NAME = "com.raineri.security.jwt.SessionLookup";
+}
@@ -0,0 +1,23 @@
+package com.raineri.security.jwt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * UserLookupEvent is a JFR event emitted by UserDetailsService.loadUserByUsername.
+ * @author Exequiel
+ */
+@Name(UserLookupEvent.NAME)
+@Label("User Lookup")
+@Category({"JWT Service", "Authentication"})
+@Description("Time spent loading a user by username")
+@Threshold("5 ms")
+@StackTrace(false)
+public class UserLookupEvent extends AuthStageEvent {
+
+    public static final String NAME = "com.raineri.security.jwt.UserLookup";
+}
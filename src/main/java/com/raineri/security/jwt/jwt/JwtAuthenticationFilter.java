@@ -1,5 +1,8 @@
 package com.raineri.security.jwt.jwt;
 
+import com.raineri.security.jwt.jfr.AuthFilterEvent;
+import com.raineri.security.jwt.session.OpaqueSession;
+import com.raineri.security.jwt.session.OpaqueTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -26,14 +30,19 @@ import org.springframework.web.filter.OncePerRequestFilter;
  * Dependencies:
  * - JwtService: Service for handling JWT operations such as extracting username and validating tokens.
  * - UserDetailsService: Service for loading user-specific data.
+ * - OpaqueTokenService: Optional service for resolving opaque tokens. When present ("auth.token.mode=opaque"),
+ *   the token is resolved against the session store instead of being parsed as a JWT, and the principal
+ *   is a UserDetails built from the session, as in JWT mode.
  * 
  * Methods:
  * - doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain):
  *   This method is overridden to implement the filtering logic. It extracts the token, validates it,
  *   and sets the authentication in the SecurityContext if the token is valid.
+ *   The authentication work is recorded as an AuthFilterEvent for JDK Flight Recorder.
  * 
  * - getTokenFromRequest(HttpServletRequest request):
- *   This method extracts the JWT token from the Authorization header of the request.
+ *   This static method extracts the bearer token from the Authorization header of the request, or
+ *   returns null if there is none. AuthController also uses it to read the token to revoke on logout.
  * 
  * Usage:
  * This filter should be registered in the security configuration to intercept incoming requests
@@ -48,37 +57,85 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired(required = false)
+    private OpaqueTokenService opaqueTokenService;
+
     @Override
     protected void doFilterInternal(
             HttpServletRequest request,
             HttpServletResponse response,
             FilterChain filterChain) throws ServletException, IOException {
 
+        AuthFilterEvent event = new AuthFilterEvent();
+        event.begin();
+        String outcome = AuthFilterEvent.OUTCOME_ERROR;
+        try {
+            outcome = authenticate(request);
+        } finally {
+            if (event.isEnabled()) {
+                event.requestUri = request.getRequestURI();
+            }
+            event.finish(outcome);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private String authenticate(HttpServletRequest request) {
         final String token = getTokenFromRequest(request);
         String username;
 
         if (token == null) {
-            filterChain.doFilter(request, response);
-            return;
+            return AuthFilterEvent.OUTCOME_NO_TOKEN;
+        }
+
+        if (opaqueTokenService != null) {
+            return authenticateOpaque(token, request);
         }
 
         username = jwtService.getUsernameFromToken(token);
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-            if (jwtService.isTokenValid(token, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+        if (username == null || SecurityContextHolder.getContext().getAuthentication() != null) {
+            return AuthFilterEvent.OUTCOME_SKIPPED;
         }
-        filterChain.doFilter(request, response);
+
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+
+        if (!jwtService.isTokenValid(token, userDetails)) {
+            return AuthFilterEvent.OUTCOME_INVALID_TOKEN;
+        }
+
+        setAuthentication(userDetails, request);
+        return AuthFilterEvent.OUTCOME_OK;
+    }
+
+    private String authenticateOpaque(String token, HttpServletRequest request) {
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            return AuthFilterEvent.OUTCOME_SKIPPED;
+        }
+
+        OpaqueSession session = opaqueTokenService.resolve(token);
+
+        if (session == null) {
+            return AuthFilterEvent.OUTCOME_INVALID_TOKEN;
+        }
+
+        UserDetails userDetails = User.withUsername(session.getSubject())
+                .password("")
+                .authorities(opaqueTokenService.getAuthorities(session))
+                .build();
+        setAuthentication(userDetails, request);
+        return AuthFilterEvent.OUTCOME_OK;
+    }
+
+    private void setAuthentication(UserDetails userDetails, HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities());
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
     }
 
-    private String getTokenFromRequest(HttpServletRequest request) {
+    public static String getTokenFromRequest(HttpServletRequest request) {
         final String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
 
         if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
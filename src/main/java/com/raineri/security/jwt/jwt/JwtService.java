@@ -1,5 +1,7 @@
 package com.raineri.security.jwt.jwt;
 
+import com.raineri.security.jwt.jfr.JwtIssueEvent;
+import com.raineri.security.jwt.jfr.JwtParseEvent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -16,6 +18,7 @@ import org.springframework.stereotype.Service;
 
 /**
  * Service class for handling JWT (JSON Web Token) operations.
+ * Token issuance and parsing are recorded as JwtIssueEvent and JwtParseEvent for JDK Flight Recorder.
  */
 @Service
 public class JwtService {
@@ -50,13 +53,22 @@ public class JwtService {
      * @return the generated JWT token
      */
     private String getToken(Map<String, Object> extraClaims, UserDetails user) {
-        return Jwts.builder()
-                .setClaims(extraClaims)
-                .setSubject(user.getUsername())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expirationTimeMillis))
-                .signWith(getKey(), SignatureAlgorithm.HS256)
-                .compact();
+        JwtIssueEvent event = new JwtIssueEvent();
+        event.begin();
+        String outcome = JwtIssueEvent.OUTCOME_ERROR;
+        try {
+            String token = Jwts.builder()
+                    .setClaims(extraClaims)
+                    .setSubject(user.getUsername())
+                    .setIssuedAt(new Date(System.currentTimeMillis()))
+                    .setExpiration(new Date(System.currentTimeMillis() + expirationTimeMillis))
+                    .signWith(getKey(), SignatureAlgorithm.HS256)
+                    .compact();
+            outcome = JwtIssueEvent.OUTCOME_OK;
+            return token;
+        } finally {
+            event.finish(outcome);
+        }
     }
 
     /**
@@ -98,11 +110,20 @@ public class JwtService {
      * @return the claims extracted from the token
      */
     private Claims getAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        JwtParseEvent event = new JwtParseEvent();
+        event.begin();
+        String outcome = JwtParseEvent.OUTCOME_ERROR;
+        try {
+            Claims claims = Jwts.parser()
+                    .setSigningKey(getKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+            outcome = JwtParseEvent.OUTCOME_OK;
+            return claims;
+        } finally {
+            event.finish(outcome);
+        }
     }
 
     /**
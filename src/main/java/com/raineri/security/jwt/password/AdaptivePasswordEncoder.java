@@ -0,0 +1,93 @@
+package com.raineri.security.jwt.password;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * AdaptivePasswordEncoder hashes passwords with BCrypt at a given strength and stores them
+ * as "{bcrypt}$2a$NN$...", so every hash records both its algorithm and its cost.
+ *
+ * Hashes without an algorithm prefix, as written before this encoder existed, are matched
+ * as plain BCrypt. upgradeEncoding reports any hash that is not a well-formed prefixed
+ * BCrypt hash with a strength in the accepted range, so it can be rehashed up or down on
+ * the next login.
+ * @author Exequiel
+ */
+public class AdaptivePasswordEncoder implements PasswordEncoder {
+
+    public static final String BCRYPT_ID = "bcrypt";
+
+    private static final Pattern PREFIXED_BCRYPT = Pattern.compile(
+            "\\{" + BCRYPT_ID + "\\}\\$2[abxy]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+    private final int minAcceptedStrength;
+    private final int maxAcceptedStrength;
+    private final DelegatingPasswordEncoder delegate;
+
+    /**
+     * Creates an encoder that hashes new passwords with BCrypt at the given strength and
+     * rehashes every stored password with another strength.
+     *
+     * @param strength the BCrypt strength (log rounds)
+     */
+    public AdaptivePasswordEncoder(int strength) {
+        this(strength, strength, strength);
+    }
+
+    /**
+     * Creates an encoder that hashes new passwords with BCrypt at the given strength and
+     * keeps stored passwords whose strength is in the accepted range.
+     *
+     * @param strength the BCrypt strength (log rounds)
+     * @param minAcceptedStrength the lowest stored strength that is not rehashed
+     * @param maxAcceptedStrength the highest stored strength that is not rehashed
+     */
+    public AdaptivePasswordEncoder(int strength, int minAcceptedStrength, int maxAcceptedStrength) {
+        PasswordHashCalibrator.checkStrengthRange(minAcceptedStrength, maxAcceptedStrength);
+        if (strength < minAcceptedStrength || strength > maxAcceptedStrength) {
+            throw new IllegalArgumentException("BCrypt strength " + strength + " is outside the accepted range "
+                    + minAcceptedStrength + ".." + maxAcceptedStrength);
+        }
+        this.strength = strength;
+        this.minAcceptedStrength = minAcceptedStrength;
+        this.maxAcceptedStrength = maxAcceptedStrength;
+        this.delegate = new DelegatingPasswordEncoder(BCRYPT_ID,
+                Map.of(BCRYPT_ID, new BCryptPasswordEncoder(strength)));
+        this.delegate.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+    }
+
+    /**
+     * @return the BCrypt strength used for new hashes
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return true;
+        }
+        Matcher matcher = PREFIXED_BCRYPT.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            return true;
+        }
+        int storedStrength = Integer.parseInt(matcher.group(1));
+        return storedStrength < minAcceptedStrength || storedStrength > maxAcceptedStrength;
+    }
+}
@@ -0,0 +1,98 @@
+package com.raineri.security.jwt.password;
+
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * PasswordHashCalibrator measures the password hashing speed of the current hardware
+ * and picks the BCrypt strength whose hash time is closest to a target latency.
+ *
+ * Each increment of the BCrypt strength doubles the hashing time, so the strength is
+ * extrapolated from the median of several hashes at a cheap probe strength. Stored hashes
+ * within HYSTERESIS of the estimate on either side of the rounded strength are accepted as
+ * they are, so an estimate close to a rounding boundary does not make restarts or nodes
+ * with slightly different measurements rehash every password on login.
+ * @author Exequiel
+ */
+@Slf4j
+public final class PasswordHashCalibrator {
+
+    public static final int MIN_BCRYPT_STRENGTH = 4;
+    public static final int MAX_BCRYPT_STRENGTH = 31;
+    public static final double HYSTERESIS = 0.25;
+
+    private static final int PROBE_STRENGTH = 8;
+    private static final int PROBE_RUNS = 7;
+    private static final String PROBE_PASSWORD = "calibration";
+
+    private PasswordHashCalibrator() {
+    }
+
+    /**
+     * Creates an AdaptivePasswordEncoder calibrated for the given target latency.
+     *
+     * @param targetMillis the target time of a single hash in milliseconds
+     * @param minStrength the lowest strength that may be chosen
+     * @param maxStrength the highest strength that may be chosen
+     * @return the calibrated encoder
+     */
+    public static AdaptivePasswordEncoder calibrate(long targetMillis, int minStrength, int maxStrength) {
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("Target latency must be positive: " + targetMillis);
+        }
+        checkStrengthRange(minStrength, maxStrength);
+
+        double estimate = estimateBCryptStrength(targetMillis);
+        int strength = clamp((int) Math.round(estimate), minStrength, maxStrength);
+        int minAccepted = clamp((int) Math.ceil(estimate - 0.5 - HYSTERESIS), minStrength, strength);
+        int maxAccepted = clamp((int) Math.floor(estimate + 0.5 + HYSTERESIS), strength, maxStrength);
+
+        if (estimate < minStrength - 0.5 || estimate > maxStrength + 0.5) {
+            log.warn("BCrypt strength {} for a target of {} ms is outside {}..{}, using {}",
+                    String.format("%.2f", estimate), targetMillis, minStrength, maxStrength, strength);
+        }
+        log.info("Calibrated BCrypt strength {} (estimate {}) for a target of {} ms, keeping stored strengths {}..{}",
+                strength, String.format("%.2f", estimate), targetMillis, minAccepted, maxAccepted);
+        return new AdaptivePasswordEncoder(strength, minAccepted, maxAccepted);
+    }
+
+    /**
+     * Estimates the fractional BCrypt strength whose hash takes the given time.
+     *
+     * @param targetMillis the target time of a single hash in milliseconds
+     * @return the estimated strength
+     */
+    public static double estimateBCryptStrength(long targetMillis) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_STRENGTH);
+        probe.encode(PROBE_PASSWORD);
+
+        long[] runs = new long[PROBE_RUNS];
+        for (int run = 0; run < PROBE_RUNS; run++) {
+            long start = System.nanoTime();
+            probe.encode(PROBE_PASSWORD);
+            runs[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(runs);
+        long medianNanos = Math.max(runs[PROBE_RUNS / 2], 1);
+
+        return PROBE_STRENGTH + Math.log(targetMillis * 1_000_000.0 / medianNanos) / Math.log(2);
+    }
+
+    /**
+     * Checks that the given strengths are valid BCrypt strengths and in order.
+     *
+     * @param minStrength the lowest strength
+     * @param maxStrength the highest strength
+     */
+    static void checkStrengthRange(int minStrength, int maxStrength) {
+        if (minStrength < MIN_BCRYPT_STRENGTH || maxStrength > MAX_BCRYPT_STRENGTH || minStrength > maxStrength) {
+            throw new IllegalArgumentException("BCrypt strengths must satisfy " + MIN_BCRYPT_STRENGTH
+                    + " <= min (" + minStrength + ") <= max (" + maxStrength + ") <= " + MAX_BCRYPT_STRENGTH);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
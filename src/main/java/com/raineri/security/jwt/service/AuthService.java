@@ -11,14 +11,17 @@ import com.raineri.security.jwt.entity.EnumRole;
 import com.raineri.security.jwt.entity.UserEntity;
 import com.raineri.security.jwt.jwt.JwtService;
 import com.raineri.security.jwt.repository.UserRepository;
+import com.raineri.security.jwt.session.OpaqueTokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * AuthService is a service class that handles authentication and registration
@@ -32,15 +35,28 @@ import org.springframework.stereotype.Service;
  * 
  * - login(LoginRequest request): Authenticates a user with the provided
  * username and password,
- * and returns an AuthResponse containing a JWT token and user ID.
+ * and returns an AuthResponse containing a JWT token and user ID. If the stored
+ * password hash does not match the current algorithm and cost, the password is
+ * rehashed and saved.
  * 
  * - register(RegisterRequest request): Registers a new user with the provided
  * details,
  * saves the user to the database, and returns an AuthResponse containing a JWT
  * token.
  * 
+ * - logout(String token): Revokes an opaque token. Only available when
+ * "auth.token.mode" is "opaque", since JWTs cannot be revoked, otherwise it
+ * fails with a bad request status.
+ * 
+ * In opaque mode, register rejects usernames that do not fit in a session
+ * record with a bad request status before saving the user.
+ * 
+ * Tokens are issued by OpaqueTokenService when it is active, otherwise by
+ * JwtService.
+ * 
  * Dependencies are injected using Spring's @Autowired annotation.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService {
@@ -53,6 +69,8 @@ public class AuthService {
         private AuthenticationManager authenticationManager;
         @Autowired
         private PasswordEncoder passwordEncoder;
+        @Autowired(required = false)
+        private OpaqueTokenService opaqueTokenService;
 
         public AuthResponse login(LoginRequest request) {
                 authenticationManager
@@ -62,13 +80,24 @@ public class AuthService {
                 UserEntity userEntity = userRepository.findByUsername(request.getUsername())
                                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
+                if (passwordEncoder.upgradeEncoding(userEntity.getPassword())) {
+                        userEntity.setPassword(passwordEncoder.encode(request.getPassword()));
+                        userRepository.save(userEntity);
+                        log.info("Rehashed password of user {} with the current algorithm and cost",
+                                        userEntity.getUsername());
+                }
+
                 return AuthResponse.builder()
-                                .token(jwtService.getToken(userEntity))
+                                .token(getToken(userEntity))
                                 .userID(userEntity.getId())
                                 .build();
         }
 
         public AuthResponse register(RegisterRequest request) {
+                if (opaqueTokenService != null) {
+                        opaqueTokenService.checkUsername(request.getUsername());
+                }
+
                 UserEntity user = UserEntity.builder()
                                 .username(request.getUsername())
                                 .password(passwordEncoder.encode(request.getPassword()))
@@ -80,7 +109,21 @@ public class AuthService {
 
                 userRepository.save(user);
                 return AuthResponse.builder()
-                                .token(jwtService.getToken(user))
+                                .token(getToken(user))
                                 .build();
         }
+
+        public void logout(String token) {
+                if (opaqueTokenService == null) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                        "Logout requires auth.token.mode=opaque");
+                }
+                opaqueTokenService.revoke(token);
+        }
+
+        private String getToken(UserEntity user) {
+                return opaqueTokenService != null
+                                ? opaqueTokenService.getToken(user)
+                                : jwtService.getToken(user);
+        }
 }
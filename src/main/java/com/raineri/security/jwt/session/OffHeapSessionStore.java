@@ -0,0 +1,415 @@
+package com.raineri.security.jwt.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OffHeapSessionStore is a fixed-capacity hash table of sessions kept in a direct ByteBuffer,
+ * so that millions of sessions add no objects to the Java heap.
+ *
+ * Each slot is a fixed 128 byte record:
+ * - stamp (8 bytes): a version counter in the high bits and the slot state in the low 2 bits.
+ * - key (16 bytes): 128 bits derived from the opaque token by OpaqueTokenService.
+ * - expiresAt (8 bytes): expiration time in epoch milliseconds.
+ * - authorities (4 bytes): bit mask of the granted authorities.
+ * - subject length (4 bytes) and up to 88 bytes of UTF-8 encoded subject.
+ *
+ * Lookups are lock-free: a reader re-checks the stamp after copying a record and retries
+ * if a writer changed the slot in the meantime. Writers (put, remove and sweep) are
+ * serialized by a lock, which readers never take.
+ * Collisions are resolved with linear probing bounded by MAX_PROBES. Removed slots become
+ * tombstones that later inserts reuse, and a tombstone that is no longer on the probe
+ * sequence of any live key is turned back into an empty slot, so lookups of unknown keys
+ * still stop at the first empty slot after heavy churn. Inserts also reuse slots of expired
+ * sessions the sweeper has not removed yet.
+ * With random keys a full table of 2^23 slots starts failing inserts at about 2/3 load,
+ * because the longest clusters outgrow MAX_PROBES, so the load is kept below MAX_LOAD_FACTOR:
+ * a store meant for a given number of sessions should be created with slotsFor(sessions).
+ * Keys are random, so the store never checks for duplicate keys on insert.
+ * @author Exequiel
+ */
+public class OffHeapSessionStore {
+
+    public static final int RECORD_SIZE = 128;
+    public static final int MAX_SUBJECT_BYTES = 88;
+    public static final int MAX_CAPACITY = 1 << 23;
+    public static final double MAX_LOAD_FACTOR = 0.5;
+    static final int MAX_PROBES = 128;
+
+    private static final int STAMP = 0;
+    private static final int KEY_HI = 8;
+    private static final int KEY_LO = 16;
+    private static final int EXPIRES_AT = 24;
+    private static final int AUTHORITIES = 32;
+    private static final int SUBJECT_LENGTH = 36;
+    private static final int SUBJECT = 40;
+
+    private static final int EMPTY = 0;
+    private static final int WRITING = 1;
+    private static final int LIVE = 2;
+    private static final int TOMBSTONE = 3;
+
+    private static final int SNAPSHOT_MAGIC = 0x4F505153;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SWEEP_BATCH = 4096;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(
+            long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Creates a store with the given number of slots, rounded up to a power of two.
+     *
+     * @param capacity the requested number of slots
+     */
+    public OffHeapSessionStore(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = ByteBuffer.allocateDirect(this.capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns the number of slots needed to hold the given number of sessions without
+     * exceeding MAX_LOAD_FACTOR.
+     *
+     * @param sessions the number of sessions
+     * @return the number of slots to create the store with
+     */
+    public static int slotsFor(int sessions) {
+        long slots = (long) Math.ceil(sessions / MAX_LOAD_FACTOR);
+        if (sessions <= 0 || slots > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Session count must be between 1 and "
+                    + (long) (MAX_CAPACITY * MAX_LOAD_FACTOR));
+        }
+        return (int) slots;
+    }
+
+    /**
+     * Stores a session under the given key, in the first empty slot, tombstone or expired
+     * session of its probe sequence.
+     *
+     * @param keyHi the high 64 bits of the key
+     * @param keyLo the low 64 bits of the key
+     * @param subject the subject of the session
+     * @param authorities the bit mask of granted authorities
+     * @param expiresAt the expiration time in epoch milliseconds
+     * @param now the current time in epoch milliseconds
+     * @return true if the session was stored, false if no free slot was found
+     */
+    public boolean put(long keyHi, long keyLo, String subject, int authorities, long expiresAt, long now) {
+        byte[] subjectBytes = subject.getBytes(StandardCharsets.UTF_8);
+        if (subjectBytes.length > MAX_SUBJECT_BYTES) {
+            throw new IllegalArgumentException("Subject is longer than " + MAX_SUBJECT_BYTES + " bytes");
+        }
+
+        writeLock.lock();
+        try {
+            int slot = home(keyLo);
+            for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+                int base = slot * RECORD_SIZE;
+                long stamp = (long) LONG.getAcquire(buffer, base + STAMP);
+                int state = state(stamp);
+                boolean expired = state == LIVE && buffer.getLong(base + EXPIRES_AT) <= now;
+                if (state != EMPTY && state != TOMBSTONE && !expired) {
+                    continue;
+                }
+                long writing = next(stamp, WRITING);
+                LONG.setVolatile(buffer, base + STAMP, writing);
+                VarHandle.releaseFence();
+                buffer.putLong(base + KEY_HI, keyHi);
+                buffer.putLong(base + KEY_LO, keyLo);
+                buffer.putLong(base + EXPIRES_AT, expiresAt);
+                buffer.putInt(base + AUTHORITIES, authorities);
+                buffer.putInt(base + SUBJECT_LENGTH, subjectBytes.length);
+                buffer.put(base + SUBJECT, subjectBytes);
+                LONG.setRelease(buffer, base + STAMP, next(writing, LIVE));
+                if (!expired) {
+                    size.incrementAndGet();
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Looks up the session stored under the given key.
+     *
+     * @param keyHi the high 64 bits of the key
+     * @param keyLo the low 64 bits of the key
+     * @param now the current time in epoch milliseconds
+     * @return the session, or null if it does not exist or has expired
+     */
+    public OpaqueSession get(long keyHi, long keyLo, long now) {
+        int slot = home(keyLo);
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            int base = slot * RECORD_SIZE;
+            while (true) {
+                long stamp = (long) LONG.getAcquire(buffer, base + STAMP);
+                int state = state(stamp);
+                if (state == EMPTY) {
+                    return null;
+                }
+                if (state != LIVE
+                        || buffer.getLong(base + KEY_HI) != keyHi
+                        || buffer.getLong(base + KEY_LO) != keyLo) {
+                    break;
+                }
+                OpaqueSession session = readSession(base);
+                VarHandle.acquireFence();
+                if ((long) LONG.getAcquire(buffer, base + STAMP) != stamp) {
+                    continue;
+                }
+                return session.getExpiresAt() > now ? session : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the session stored under the given key.
+     *
+     * @param keyHi the high 64 bits of the key
+     * @param keyLo the low 64 bits of the key
+     * @return true if a session was removed
+     */
+    public boolean remove(long keyHi, long keyLo) {
+        writeLock.lock();
+        try {
+            int slot = home(keyLo);
+            for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+                int base = slot * RECORD_SIZE;
+                long stamp = (long) LONG.getAcquire(buffer, base + STAMP);
+                int state = state(stamp);
+                if (state == EMPTY) {
+                    return false;
+                }
+                if (state == LIVE
+                        && buffer.getLong(base + KEY_HI) == keyHi
+                        && buffer.getLong(base + KEY_LO) == keyLo) {
+                    bury(slot, stamp);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes every expired session. The lock is taken in batches of slots so that
+     * logins are not blocked for the whole scan.
+     *
+     * @param now the current time in epoch milliseconds
+     * @return the number of sessions removed
+     */
+    public int sweep(long now) {
+        int removed = 0;
+        for (int batch = 0; batch < capacity; batch += SWEEP_BATCH) {
+            writeLock.lock();
+            try {
+                for (int slot = batch; slot < Math.min(batch + SWEEP_BATCH, capacity); slot++) {
+                    int base = slot * RECORD_SIZE;
+                    long stamp = (long) LONG.getAcquire(buffer, base + STAMP);
+                    if (state(stamp) == LIVE && buffer.getLong(base + EXPIRES_AT) <= now) {
+                        bury(slot, stamp);
+                        removed++;
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Writes every live, unexpired session to the given file. The file is readable by its
+     * owner only and is replaced atomically.
+     *
+     * @param file the snapshot file
+     * @param now the current time in epoch milliseconds
+     * @return the number of sessions written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public int writeSnapshot(Path file, long now) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        if (temp.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            for (int slot = 0; slot < capacity; slot++) {
+                int base = slot * RECORD_SIZE;
+                long stamp = (long) LONG.getAcquire(buffer, base + STAMP);
+                if (state(stamp) != LIVE) {
+                    continue;
+                }
+                long keyHi = buffer.getLong(base + KEY_HI);
+                long keyLo = buffer.getLong(base + KEY_LO);
+                OpaqueSession session = readSession(base);
+                VarHandle.acquireFence();
+                if ((long) LONG.getAcquire(buffer, base + STAMP) != stamp || session.getExpiresAt() <= now) {
+                    continue;
+                }
+                out.writeBoolean(true);
+                out.writeLong(keyHi);
+                out.writeLong(keyLo);
+                out.writeLong(session.getExpiresAt());
+                out.writeInt(session.getAuthorities());
+                out.writeUTF(session.getSubject());
+                written++;
+            }
+            out.writeBoolean(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Loads the unexpired sessions of a snapshot written by writeSnapshot.
+     *
+     * @param file the snapshot file
+     * @param now the current time in epoch milliseconds
+     * @return the number of sessions loaded
+     * @throws IOException if the snapshot cannot be read or has an unknown format
+     */
+    public int readSnapshot(Path file, long now) throws IOException {
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unknown session snapshot format: " + file);
+            }
+            while (in.readBoolean()) {
+                long keyHi = in.readLong();
+                long keyLo = in.readLong();
+                long expiresAt = in.readLong();
+                int authorities = in.readInt();
+                String subject = in.readUTF();
+                if (expiresAt > now && put(keyHi, keyLo, subject, authorities, expiresAt, now)) {
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return the number of live sessions, including expired ones not swept yet
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the number of slots in the store
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Turns a live slot into a tombstone and reclaims the tombstones that no longer
+     * sit on the probe sequence of any live key. Must be called with the write lock held.
+     */
+    private void bury(int slot, long stamp) {
+        LONG.setRelease(buffer, slot * RECORD_SIZE + STAMP, next(stamp, TOMBSTONE));
+        size.decrementAndGet();
+
+        // Only tombstones up to MAX_PROBES slots before the buried one can have been
+        // kept alive by it, and a tombstone before an empty slot was already reclaimed.
+        int window = Math.min(MAX_PROBES, capacity);
+        for (int probe = 0; probe < window; probe++, slot = (slot - 1) & mask) {
+            long current = (long) LONG.getAcquire(buffer, slot * RECORD_SIZE + STAMP);
+            int state = state(current);
+            if (state == EMPTY) {
+                return;
+            }
+            if (state == TOMBSTONE && !isOnProbeSequence(slot)) {
+                LONG.setRelease(buffer, slot * RECORD_SIZE + STAMP, next(current, EMPTY));
+            }
+        }
+    }
+
+    /**
+     * @return true if a live key after the given slot probes through it
+     */
+    private boolean isOnProbeSequence(int slot) {
+        int window = Math.min(MAX_PROBES, capacity);
+        int candidate = (slot + 1) & mask;
+        for (int distance = 1; distance < window; distance++, candidate = (candidate + 1) & mask) {
+            int base = candidate * RECORD_SIZE;
+            int state = state((long) LONG.getAcquire(buffer, base + STAMP));
+            if (state == EMPTY) {
+                return false;
+            }
+            if (state == LIVE && ((candidate - home(buffer.getLong(base + KEY_LO))) & mask) >= distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of tombstones, for tests
+     */
+    int tombstones() {
+        int tombstones = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (state((long) LONG.getAcquire(buffer, slot * RECORD_SIZE + STAMP)) == TOMBSTONE) {
+                tombstones++;
+            }
+        }
+        return tombstones;
+    }
+
+    private OpaqueSession readSession(int base) {
+        int length = Math.min(Math.max(buffer.getInt(base + SUBJECT_LENGTH), 0), MAX_SUBJECT_BYTES);
+        byte[] subject = new byte[length];
+        buffer.get(base + SUBJECT, subject);
+        return new OpaqueSession(
+                new String(subject, StandardCharsets.UTF_8),
+                buffer.getInt(base + AUTHORITIES),
+                buffer.getLong(base + EXPIRES_AT));
+    }
+
+    private int home(long keyLo) {
+        return (int) (keyLo ^ (keyLo >>> 32)) & mask;
+    }
+
+    private static int state(long stamp) {
+        return (int) (stamp & 3);
+    }
+
+    private static long next(long stamp, int state) {
+        return ((stamp >>> 2) + 1) << 2 | state;
+    }
+}
@@ -0,0 +1,17 @@
+package com.raineri.security.jwt.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * OpaqueSession is a copy of a session record read from the OffHeapSessionStore.
+ * @author Exequiel
+ */
+@Value
+@AllArgsConstructor
+public class OpaqueSession {
+
+    String subject;
+    int authorities;
+    long expiresAt;
+}
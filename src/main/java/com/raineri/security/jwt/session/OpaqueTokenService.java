@@ -0,0 +1,229 @@
+package com.raineri.security.jwt.session;
+
+import com.raineri.security.jwt.entity.EnumRole;
+import com.raineri.security.jwt.jfr.SessionLookupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Service class for handling opaque reference tokens.
+ * It is only active when "auth.token.mode" is set to "opaque", in which case it replaces
+ * JwtService for issuing and resolving tokens.
+ *
+ * A token is 128 random bits encoded as URL-safe Base64. The first 128 bits of the SHA-256
+ * of the token are the key of a session in an OffHeapSessionStore, which holds the subject,
+ * authorities and expiration, so neither the store nor its snapshots contain usable tokens.
+ * Expired sessions are swept periodically and, if "auth.opaque.snapshot-file" is set, the
+ * sessions are saved on shutdown and loaded again on startup. The snapshot is deleted as
+ * soon as it has been loaded, so that after a crash the service starts with an empty store
+ * instead of restoring sessions that were revoked since the last shutdown. A snapshot that
+ * cannot be read is ignored and the service also starts with an empty store.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "auth.token.mode", havingValue = "opaque")
+public class OpaqueTokenService {
+
+    private static final int TOKEN_BYTES = 16;
+    private static final int TOKEN_LENGTH = 22;
+    private static final EnumRole[] ROLES = EnumRole.values();
+
+    /**
+     * The number of sessions the store is sized for.
+     */
+    @Value("${auth.opaque.capacity:262144}")
+    private int capacity;
+
+    /**
+     * The time to live of a session in milliseconds.
+     */
+    @Value("${auth.opaque.ttl:${jwt.expiration}}")
+    private long ttlMillis;
+
+    /**
+     * The interval between sweeps of expired sessions in milliseconds.
+     */
+    @Value("${auth.opaque.sweep-interval:60000}")
+    private long sweepIntervalMillis;
+
+    /**
+     * The file the sessions are saved to on shutdown, empty to disable snapshots.
+     */
+    @Value("${auth.opaque.snapshot-file:}")
+    private String snapshotFile;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final SecureRandom random = new SecureRandom();
+    private final List<List<GrantedAuthority>> authoritiesByMask = new ArrayList<>();
+    private OffHeapSessionStore store;
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    void start() {
+        store = new OffHeapSessionStore(OffHeapSessionStore.slotsFor(capacity));
+        for (int mask = 0; mask < 1 << ROLES.length; mask++) {
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            for (EnumRole role : ROLES) {
+                if ((mask & 1 << role.ordinal()) != 0) {
+                    authorities.add(new SimpleGrantedAuthority(role.name()));
+                }
+            }
+            authoritiesByMask.add(List.copyOf(authorities));
+        }
+
+        if (!snapshotFile.isBlank() && Files.exists(Path.of(snapshotFile))) {
+            try {
+                int loaded = store.readSnapshot(Path.of(snapshotFile), System.currentTimeMillis());
+                Files.delete(Path.of(snapshotFile));
+                log.info("Loaded {} sessions from {}", loaded, snapshotFile);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Ignoring session snapshot {}: {}", snapshotFile, e.toString());
+                store = new OffHeapSessionStore(OffHeapSessionStore.slotsFor(capacity));
+            }
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "opaque-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(
+                () -> store.sweep(System.currentTimeMillis()),
+                sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        sweeper.shutdownNow();
+        if (!snapshotFile.isBlank()) {
+            int written = store.writeSnapshot(Path.of(snapshotFile), System.currentTimeMillis());
+            log.info("Saved {} sessions to {}", written, snapshotFile);
+        }
+    }
+
+    /**
+     * Checks that the given username fits in a session record.
+     *
+     * @param username the username
+     * @throws ResponseStatusException with status 400 if the username is too long
+     */
+    public void checkUsername(String username) {
+        if (username.getBytes(StandardCharsets.UTF_8).length > OffHeapSessionStore.MAX_SUBJECT_BYTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Username must not be longer than " + OffHeapSessionStore.MAX_SUBJECT_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Issues an opaque token for the given user.
+     *
+     * @param user the user details
+     * @return the generated opaque token
+     * @throws ResponseStatusException with status 400 if the username is too long
+     */
+    public String getToken(UserDetails user) {
+        checkUsername(user.getUsername());
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        ByteBuffer key = toKey(bytes);
+
+        int authorities = 0;
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            authorities |= 1 << EnumRole.valueOf(authority.getAuthority()).ordinal();
+        }
+
+        long now = System.currentTimeMillis();
+        if (!store.put(key.getLong(0), key.getLong(8), user.getUsername(), authorities, now + ttlMillis, now)) {
+            throw new IllegalStateException("Session store is full");
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Resolves the session of the given opaque token.
+     *
+     * @param token the opaque token
+     * @return the session, or null if the token is malformed, unknown or expired
+     */
+    public OpaqueSession resolve(String token) {
+        SessionLookupEvent event = new SessionLookupEvent();
+        event.begin();
+        String outcome = SessionLookupEvent.OUTCOME_ERROR;
+        try {
+            ByteBuffer key = decode(token);
+            OpaqueSession session = key != null
+                    ? store.get(key.getLong(0), key.getLong(8), System.currentTimeMillis())
+                    : null;
+            outcome = session != null ? SessionLookupEvent.OUTCOME_OK : SessionLookupEvent.OUTCOME_NOT_FOUND;
+            return session;
+        } finally {
+            event.finish(outcome);
+        }
+    }
+
+    /**
+     * Revokes the given opaque token.
+     *
+     * @param token the opaque token
+     * @return true if a session was revoked
+     */
+    public boolean revoke(String token) {
+        ByteBuffer key = decode(token);
+        return key != null && store.remove(key.getLong(0), key.getLong(8));
+    }
+
+    /**
+     * Retrieves the granted authorities of the given session.
+     *
+     * @param session the session
+     * @return the granted authorities
+     */
+    public List<GrantedAuthority> getAuthorities(OpaqueSession session) {
+        return authoritiesByMask.get(session.getAuthorities() & (authoritiesByMask.size() - 1));
+    }
+
+    private ByteBuffer decode(String token) {
+        if (token.length() != TOKEN_LENGTH) {
+            return null;
+        }
+        try {
+            return toKey(Base64.getUrlDecoder().decode(token));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer toKey(byte[] token) {
+        return ByteBuffer.wrap(SHA_256.get().digest(token));
+    }
+}
@@ -0,0 +1,110 @@
+package com.raineri.security.jwt.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.raineri.security.jwt.jfr.AuthRecordingSummary.StageSummary;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+class AuthRecordingSummaryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final PasswordEncoder PLAIN_TEXT = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (rawPassword.isEmpty()) {
+                throw new IllegalArgumentException("Empty password");
+            }
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    };
+
+    private Path record(Runnable workload) throws IOException {
+        Path file = tempDir.resolve("auth.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(JwtParseEvent.NAME).withThreshold(Duration.ZERO);
+            recording.enable(PasswordEncoderEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            workload.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return file;
+    }
+
+    @Test
+    void groupsEventsByStageOperationAndOutcome() throws IOException {
+        PasswordEncoder encoder = new RecordingPasswordEncoder(PLAIN_TEXT);
+        Path file = record(() -> {
+            for (int i = 0; i < 20; i++) {
+                JwtParseEvent event = new JwtParseEvent();
+                event.begin();
+                event.finish(i < 15 ? JwtParseEvent.OUTCOME_OK : JwtParseEvent.OUTCOME_ERROR);
+            }
+            for (int i = 0; i < 3; i++) {
+                encoder.encode("secret");
+                encoder.matches("secret", "secret");
+            }
+            encoder.matches("secret", "other");
+            assertThrows(IllegalArgumentException.class, () -> encoder.encode(""));
+        });
+
+        Map<String, StageSummary> summaries = AuthRecordingSummary.summarize(file);
+
+        assertEquals(List.of(
+                "JwtParse [ERROR]",
+                "JwtParse [OK]",
+                "PasswordEncoder.encode [ERROR]",
+                "PasswordEncoder.encode [OK]",
+                "PasswordEncoder.matches [MISMATCH]",
+                "PasswordEncoder.matches [OK]"), List.copyOf(summaries.keySet()));
+        assertEquals(5, summaries.get("JwtParse [ERROR]").count());
+        assertEquals(15, summaries.get("JwtParse [OK]").count());
+        assertEquals(1, summaries.get("PasswordEncoder.encode [ERROR]").count());
+        assertEquals(3, summaries.get("PasswordEncoder.encode [OK]").count());
+        assertEquals(1, summaries.get("PasswordEncoder.matches [MISMATCH]").count());
+        assertEquals(3, summaries.get("PasswordEncoder.matches [OK]").count());
+
+        for (StageSummary summary : summaries.values()) {
+            assertTrue(summary.p50() <= summary.p95());
+            assertTrue(summary.p95() <= summary.p99());
+            assertTrue(summary.p99() <= summary.max());
+            assertTrue(summary.mean() <= summary.max());
+        }
+    }
+
+    @Test
+    void emptyRecordingHasNoStages() throws IOException {
+        Path file = record(() -> { });
+
+        assertTrue(AuthRecordingSummary.summarize(file).isEmpty());
+    }
+
+    @Test
+    void percentileUsesNearestRank() {
+        List<Long> durations = LongStream.rangeClosed(1, 200).boxed().toList();
+
+        assertEquals(100, AuthRecordingSummary.percentile(durations, 50));
+        assertEquals(190, AuthRecordingSummary.percentile(durations, 95));
+        assertEquals(198, AuthRecordingSummary.percentile(durations, 99));
+        assertEquals(7, AuthRecordingSummary.percentile(List.of(7L), 50));
+        assertEquals(2, AuthRecordingSummary.percentile(List.of(1L, 2L), 99));
+    }
+}
@@ -0,0 +1,69 @@
+package com.raineri.security.jwt.password;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+class AdaptivePasswordEncoderTest {
+
+    private final AdaptivePasswordEncoder encoder = new AdaptivePasswordEncoder(5);
+
+    @Test
+    void encodesWithAlgorithmPrefixAndCost() {
+        String encoded = encoder.encode("secret");
+
+        assertTrue(encoded.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(encoder.matches("secret", encoded));
+        assertFalse(encoder.matches("other", encoded));
+        assertFalse(encoder.upgradeEncoding(encoded));
+    }
+
+    @Test
+    void rehashesUnprefixedLegacyHash() {
+        String legacy = new BCryptPasswordEncoder(5).encode("secret");
+
+        assertTrue(encoder.matches("secret", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+    }
+
+    @Test
+    void rehashesPrefixedHashAtAnotherCost() {
+        assertTrue(encoder.upgradeEncoding(new AdaptivePasswordEncoder(4).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new AdaptivePasswordEncoder(6).encode("secret")));
+    }
+
+    @Test
+    void keepsPrefixedHashWithinAcceptedRange() {
+        AdaptivePasswordEncoder tolerant = new AdaptivePasswordEncoder(5, 4, 6);
+
+        assertFalse(tolerant.upgradeEncoding(new AdaptivePasswordEncoder(4).encode("secret")));
+        assertFalse(tolerant.upgradeEncoding(new AdaptivePasswordEncoder(6).encode("secret")));
+        assertTrue(tolerant.upgradeEncoding(new AdaptivePasswordEncoder(7).encode("secret")));
+    }
+
+    @Test
+    void rehashesUnknownAlgorithm() {
+        assertTrue(encoder.upgradeEncoding("{noop}secret"));
+        assertTrue(encoder.upgradeEncoding("{argon2}$argon2id$v=19$m=16384,t=2,p=1$c2FsdA$aGFzaA"));
+    }
+
+    @Test
+    void rehashesMalformedHashWithoutThrowing() {
+        assertTrue(encoder.upgradeEncoding(null));
+        assertTrue(encoder.upgradeEncoding(""));
+        assertTrue(encoder.upgradeEncoding("{bcrypt}"));
+        assertTrue(encoder.upgradeEncoding("{bcrypt}$2a$xx$"));
+        assertTrue(encoder.upgradeEncoding("{bcrypt}$2a$05$tooshort"));
+        assertTrue(encoder.upgradeEncoding("{bcrypt"));
+    }
+
+    @Test
+    void rejectsInvalidStrengths() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePasswordEncoder(3));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePasswordEncoder(32));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePasswordEncoder(8, 4, 6));
+    }
+}
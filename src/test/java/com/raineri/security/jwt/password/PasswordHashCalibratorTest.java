@@ -0,0 +1,36 @@
+package com.raineri.security.jwt.password;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PasswordHashCalibratorTest {
+
+    @Test
+    void clampsToMaxStrength() {
+        // A target of one hour would need a far higher strength
+        AdaptivePasswordEncoder encoder = PasswordHashCalibrator.calibrate(3_600_000, 4, 6);
+
+        assertEquals(6, encoder.getStrength());
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+    }
+
+    @Test
+    void clampsToMinStrength() {
+        AdaptivePasswordEncoder encoder = PasswordHashCalibrator.calibrate(1, 5, 6);
+
+        assertEquals(5, encoder.getStrength());
+        assertTrue(encoder.upgradeEncoding(new AdaptivePasswordEncoder(4).encode("secret")));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> PasswordHashCalibrator.calibrate(0, 10, 14));
+        assertThrows(IllegalArgumentException.class, () -> PasswordHashCalibrator.calibrate(250, 3, 14));
+        assertThrows(IllegalArgumentException.class, () -> PasswordHashCalibrator.calibrate(250, 10, 32));
+        assertThrows(IllegalArgumentException.class, () -> PasswordHashCalibrator.calibrate(250, 14, 10));
+    }
+}
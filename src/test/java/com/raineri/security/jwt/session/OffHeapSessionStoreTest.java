@@ -0,0 +1,326 @@
+package com.raineri.security.jwt.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OffHeapSessionStoreTest {
+
+    private static final long NOW = 1_000_000L;
+    private static final long LATER = NOW + 60_000L;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Keys whose low bits are zero all have home slot 0 in a store of at most 256 slots.
+     */
+    private static long collidingKey(int index) {
+        return (long) (index + 1) << 8;
+    }
+
+    @Test
+    void putGetRemove() {
+        OffHeapSessionStore store = new OffHeapSessionStore(1024);
+
+        assertTrue(store.put(1, 2, "alice", 3, LATER, NOW));
+        assertEquals(1, store.size());
+
+        OpaqueSession session = store.get(1, 2, NOW);
+        assertNotNull(session);
+        assertEquals("alice", session.getSubject());
+        assertEquals(3, session.getAuthorities());
+        assertEquals(LATER, session.getExpiresAt());
+
+        assertNull(store.get(1, 3, NOW));
+        assertNull(store.get(2, 2, NOW));
+
+        assertTrue(store.remove(1, 2));
+        assertFalse(store.remove(1, 2));
+        assertNull(store.get(1, 2, NOW));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1024, new OffHeapSessionStore(1000).capacity());
+        assertEquals(1, new OffHeapSessionStore(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapSessionStore(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapSessionStore(OffHeapSessionStore.MAX_CAPACITY + 1));
+    }
+
+    @Test
+    void rejectsLongSubject() {
+        OffHeapSessionStore store = new OffHeapSessionStore(16);
+        String subject = "x".repeat(OffHeapSessionStore.MAX_SUBJECT_BYTES + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> store.put(1, 2, subject, 0, LATER, NOW));
+    }
+
+    @Test
+    void getIgnoresExpiredSession() {
+        OffHeapSessionStore store = new OffHeapSessionStore(16);
+        store.put(1, 2, "alice", 0, NOW, NOW);
+
+        assertNull(store.get(1, 2, NOW));
+        assertNotNull(store.get(1, 2, NOW - 1));
+    }
+
+    @Test
+    void sweepRemovesExpiredSessions() {
+        OffHeapSessionStore store = new OffHeapSessionStore(64);
+        store.put(1, 1, "expired", 0, NOW, NOW - 1);
+        // Home slot 1 as well, so it lands in slot 2 and probes through slot 1
+        store.put(2, 65, "live", 0, LATER, NOW - 1);
+
+        assertEquals(1, store.sweep(NOW));
+        assertEquals(1, store.size());
+        assertNull(store.get(1, 1, NOW - 1));
+        assertNotNull(store.get(2, 65, NOW));
+        assertEquals(0, store.sweep(NOW));
+        assertEquals(1, store.tombstones());
+
+        assertEquals(1, store.sweep(LATER));
+        assertEquals(0, store.tombstones());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void putReusesTombstone() {
+        OffHeapSessionStore store = new OffHeapSessionStore(256);
+        for (int i = 0; i < OffHeapSessionStore.MAX_PROBES; i++) {
+            assertTrue(store.put(0, collidingKey(i), "user" + i, 0, LATER, NOW));
+        }
+
+        assertTrue(store.remove(0, collidingKey(10)));
+        assertEquals(1, store.tombstones());
+
+        // The sessions after the tombstone are still reachable
+        for (int i = 11; i < OffHeapSessionStore.MAX_PROBES; i++) {
+            assertEquals("user" + i, store.get(0, collidingKey(i), NOW).getSubject());
+        }
+
+        assertTrue(store.put(0, collidingKey(1000), "reused", 0, LATER, NOW));
+        assertEquals(0, store.tombstones());
+        assertEquals("reused", store.get(0, collidingKey(1000), NOW).getSubject());
+    }
+
+    @Test
+    void putFailsWhenProbeWindowIsFull() {
+        OffHeapSessionStore store = new OffHeapSessionStore(256);
+        for (int i = 0; i < OffHeapSessionStore.MAX_PROBES; i++) {
+            assertTrue(store.put(0, collidingKey(i), "user" + i, 0, LATER, NOW));
+        }
+
+        assertFalse(store.put(0, collidingKey(1000), "overflow", 0, LATER, NOW));
+        assertEquals(OffHeapSessionStore.MAX_PROBES, store.size());
+    }
+
+    @Test
+    void putReusesExpiredSessions() {
+        OffHeapSessionStore store = new OffHeapSessionStore(256);
+        for (int i = 0; i < OffHeapSessionStore.MAX_PROBES; i++) {
+            assertTrue(store.put(0, collidingKey(i), "user" + i, 0, i == 10 ? NOW : LATER, NOW - 1));
+        }
+
+        assertTrue(store.put(0, collidingKey(1000), "reused", 0, LATER, NOW));
+        assertEquals(OffHeapSessionStore.MAX_PROBES, store.size());
+        assertEquals("reused", store.get(0, collidingKey(1000), NOW).getSubject());
+        assertNull(store.get(0, collidingKey(10), NOW - 1));
+        assertEquals("user11", store.get(0, collidingKey(11), NOW).getSubject());
+        assertEquals(0, store.sweep(NOW));
+    }
+
+    @Test
+    void slotsForKeepsLoadFactor() {
+        assertEquals(6, OffHeapSessionStore.slotsFor(3));
+        assertEquals(524_288, OffHeapSessionStore.slotsFor(262_144));
+        assertEquals(OffHeapSessionStore.MAX_CAPACITY,
+                OffHeapSessionStore.slotsFor((int) (OffHeapSessionStore.MAX_CAPACITY * OffHeapSessionStore.MAX_LOAD_FACTOR)));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapSessionStore.slotsFor(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> OffHeapSessionStore.slotsFor(OffHeapSessionStore.MAX_CAPACITY));
+    }
+
+    @Test
+    void fillsToLoadFactorWithRandomKeys() {
+        OffHeapSessionStore store = new OffHeapSessionStore(1 << 17);
+        int sessions = (int) (store.capacity() * OffHeapSessionStore.MAX_LOAD_FACTOR);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < sessions; i++) {
+            assertTrue(store.put(random.nextLong(), random.nextLong(), "user", 0, LATER, NOW));
+        }
+        assertEquals(sessions, store.size());
+    }
+
+    @Test
+    void tombstonesAreReclaimedOnceNoKeyProbesThroughThem() {
+        OffHeapSessionStore store = new OffHeapSessionStore(256);
+        for (int i = 0; i < 50; i++) {
+            store.put(0, collidingKey(i), "user" + i, 0, LATER, NOW);
+        }
+
+        for (int i = 0; i < 49; i++) {
+            store.remove(0, collidingKey(i));
+        }
+        assertEquals(49, store.tombstones());
+
+        store.remove(0, collidingKey(49));
+        assertEquals(0, store.tombstones());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void tombstoneBeforeKeyWithLaterHomeIsReclaimed() {
+        OffHeapSessionStore store = new OffHeapSessionStore(64);
+        store.put(1, 1, "first", 0, LATER, NOW);
+        store.put(2, 2, "second", 0, LATER, NOW);
+
+        store.remove(1, 1);
+
+        assertEquals(0, store.tombstones());
+        assertNotNull(store.get(2, 2, NOW));
+    }
+
+    @Test
+    void churnDoesNotAccumulateTombstones() {
+        OffHeapSessionStore store = new OffHeapSessionStore(1024);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<long[]> keys = new ArrayList<>();
+
+        for (int cycle = 0; cycle < 20_000; cycle++) {
+            long[] key = {random.nextLong(), random.nextLong()};
+            assertTrue(store.put(key[0], key[1], "user", 0, LATER, NOW));
+            keys.add(key);
+            if (keys.size() > 100) {
+                long[] removed = keys.remove(random.nextInt(keys.size()));
+                assertTrue(store.remove(removed[0], removed[1]));
+            }
+        }
+        for (long[] key : keys) {
+            assertTrue(store.remove(key[0], key[1]));
+        }
+
+        assertEquals(0, store.size());
+        assertEquals(0, store.tombstones());
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        Path file = tempDir.resolve("sessions.snapshot");
+        OffHeapSessionStore store = new OffHeapSessionStore(64);
+        store.put(1, 1, "alice", 1, LATER, NOW);
+        store.put(2, 2, "bob", 2, NOW + 10, NOW);
+        store.put(3, 3, "expired", 0, NOW, NOW);
+
+        assertEquals(2, store.writeSnapshot(file, NOW));
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+
+        OffHeapSessionStore restored = new OffHeapSessionStore(64);
+        assertEquals(2, restored.readSnapshot(file, NOW));
+        assertEquals("alice", restored.get(1, 1, NOW).getSubject());
+        assertEquals(1, restored.get(1, 1, NOW).getAuthorities());
+        assertEquals("bob", restored.get(2, 2, NOW).getSubject());
+        assertNull(restored.get(3, 3, NOW - 1));
+
+        OffHeapSessionStore later = new OffHeapSessionStore(64);
+        assertEquals(1, later.readSnapshot(file, NOW + 10));
+        assertNull(later.get(2, 2, NOW));
+        assertNotNull(later.get(1, 1, NOW));
+    }
+
+    @Test
+    void readSnapshotRejectsUnknownFormat() throws IOException {
+        Path file = tempDir.resolve("garbage.snapshot");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        assertThrows(IOException.class, () -> new OffHeapSessionStore(64).readSnapshot(file, NOW));
+    }
+
+    @Test
+    void readSnapshotRejectsTruncatedFile() throws IOException {
+        Path file = tempDir.resolve("truncated.snapshot");
+        OffHeapSessionStore store = new OffHeapSessionStore(64);
+        store.put(1, 1, "alice", 1, LATER, NOW);
+        store.writeSnapshot(file, NOW);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThrows(IOException.class, () -> new OffHeapSessionStore(64).readSnapshot(file, NOW));
+    }
+
+    @Test
+    void concurrentReadersSeeConsistentSessions() throws InterruptedException {
+        OffHeapSessionStore store = new OffHeapSessionStore(256);
+        int stable = 40;
+        int window = 5;
+        // Churned sessions sit in front of the stable ones, so readers probe across
+        // slots that are being removed and reused
+        for (int i = stable; i < stable + window; i++) {
+            store.put(0, collidingKey(i), "churn" + i, 0, LATER, NOW);
+        }
+        for (int i = 0; i < stable; i++) {
+            store.put(0, collidingKey(i), "stable" + i, i, LATER, NOW);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(() -> {
+                while (running.get()) {
+                    for (int i = 0; i < stable; i++) {
+                        OpaqueSession session = store.get(0, collidingKey(i), NOW);
+                        if (session == null
+                                || !session.getSubject().equals("stable" + i)
+                                || session.getAuthorities() != i) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    for (int i = stable; i < stable + 40; i++) {
+                        OpaqueSession session = store.get(0, collidingKey(i), NOW);
+                        if (session != null && !session.getSubject().equals("churn" + i)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (int cycle = 0; cycle < 50_000; cycle++) {
+            int removed = stable + cycle % 40;
+            int added = stable + (cycle + window) % 40;
+            assertTrue(store.remove(0, collidingKey(removed)));
+            assertTrue(store.put(0, collidingKey(added), "churn" + added, 0, LATER, NOW));
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(0, failures.get());
+        assertEquals(stable + window, store.size());
+    }
+}